@@ -43,6 +43,14 @@ public abstract class AbstractBloomFilter <T> implements BloomFilter<T> {
         }
     }
 
+    /**
+     * Check if logging is enabled, so hot paths can skip building log messages
+     * @return boolean     true if logs are shown, false otherwise
+     */
+    protected boolean isLogEnabled() {
+        return showLog;
+    }
+
     /**
      * Check if the bloom filter is full or not
      * @return boolean true if the bloom filter is full, false otherwise
@@ -76,20 +84,38 @@ public abstract class AbstractBloomFilter <T> implements BloomFilter<T> {
     @Override
     public void add(T value) {
         if (contains(value)) {
-            log("Value " + value.toString() + " is already present in the bloom filter");
+            if (isLogEnabled()) {
+                log("Value " + value.toString() + " is already present in the bloom filter");
+            }
             return;
         }
-        log("Trying to add value " + value.toString() + " to the bloom filter");
+        insert(value);
+    }
+
+    /**
+     * Insert a value that is known to be absent, scaling up when the current bitmap has no place left
+     * @param value        value to be inserted
+     */
+    protected void insert(T value) {
+        if (isLogEnabled()) {
+            log("Trying to add value " + value.toString() + " to the bloom filter");
+        }
         if (isPlaceToAdd()) {
             List<Long> setBits = getSetBits(value);
-            log("Set bits: " + setBits);
+            if (isLogEnabled()) {
+                log("Set bits: " + setBits);
+            }
             addToBitMap(setBits);
-            log("Value " + value.toString() + " added to the bloom filter");
+            if (isLogEnabled()) {
+                log("Value " + value.toString() + " added to the bloom filter");
+            }
         } else {
             log("Bloom filter is full, scaling up");
             scaleUp();
-            log("Recursively adding value " + value.toString() + " to the bloom filter after scaling up");
-            add(value);
+            if (isLogEnabled()) {
+                log("Recursively adding value " + value.toString() + " to the bloom filter after scaling up");
+            }
+            insert(value);
         }
     }
 
@@ -97,9 +123,11 @@ public abstract class AbstractBloomFilter <T> implements BloomFilter<T> {
     public boolean containsOrAdd(T value) {
         boolean exists = contains(value);
         if (!exists) {
-            add(value);
+            insert(value);
+        }
+        if (isLogEnabled()) {
+            log("Value " + value.toString() + " is " + (exists ? "already present" : "added") + " in the bloom filter");
         }
-        log("Value " + value.toString() + " is " + (exists ? "already present" : "added") + " in the bloom filter");
         return exists;
     }
 }
@@ -0,0 +1,250 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking facade over a bloom filter for callers that must not block, like event loop threads.
+ * Requests are queued and coalesced into micro-batches that a single dedicated thread applies to the wrapped filter,
+ * so scaling up or rehashing never runs on the caller thread and the wrapped filter needs no locking.
+ * The queue is bounded, a request that does not fit is rejected instead of blocking the caller.
+ * Futures are completed on the worker thread, use the async variants of CompletableFuture for heavy follow-up work.
+ *
+ * @param <T> the type of elements to be stored in the bloom filter
+ */
+public class AsyncBloomFilter<T> implements AutoCloseable {
+
+    private enum Operation {
+        CONTAINS, ADD, CONTAINS_OR_ADD
+    }
+
+    private static final class Request<T> {
+        private final Operation operation;
+        private final T value;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Request(Operation operation, T value) {
+            this.operation = operation;
+            this.value = value;
+        }
+    }
+
+    private final BloomFilter<T> bloomFilter;
+    private final BlockingQueue<Request<T>> queue;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final ExecutorService executor;
+    private volatile boolean running = true;
+    private volatile Thread worker;
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructor with batches of at most 1024 requests collected for at most 1 millisecond and 65536 queued requests.
+     * @param bloomFilter       filter to be wrapped, must not be used directly afterwards
+     */
+    public AsyncBloomFilter(BloomFilter<T> bloomFilter) {
+        this(bloomFilter, 1024, Duration.ofMillis(1), 65536);
+    }
+
+    /**
+     * Constructor for AsyncBloomFilter.
+     * @param bloomFilter       filter to be wrapped, must not be used directly afterwards
+     * @param maxBatchSize      maximum number of requests applied in one batch
+     * @param maxLatency        maximum time a batch keeps taking newly arrived requests after its first one
+     * @param queueCapacity     maximum number of queued requests before new ones are rejected
+     */
+    public AsyncBloomFilter(BloomFilter<T> bloomFilter, int maxBatchSize, Duration maxLatency, int queueCapacity) {
+        if (maxBatchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive");
+        }
+        this.bloomFilter = bloomFilter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "async-bloom-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.execute(this::drain);
+    }
+
+    /**
+     * Check if an item exists or not
+     * @param value                 value that you are searching for
+     * @return CompletableFuture    completes with true if exists, false otherwise
+     */
+    public CompletableFuture<Boolean> contains(T value) {
+        return submit(Operation.CONTAINS, value);
+    }
+
+    /**
+     * Add an item to the bloom filter
+     * @param value                 value to be added
+     * @return CompletableFuture    completes once the value is added
+     */
+    public CompletableFuture<Void> add(T value) {
+        return submit(Operation.ADD, value).thenApply(added -> null);
+    }
+
+    /**
+     * Check if an item exists or add it to the bloom filter
+     * @param value                 value that you are searching for
+     * @return CompletableFuture    completes with true if exists, false otherwise
+     */
+    public CompletableFuture<Boolean> containsOrAdd(T value) {
+        return submit(Operation.CONTAINS_OR_ADD, value);
+    }
+
+    /**
+     * Get the number of requests waiting in the queue
+     * @return int      current queue depth
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get the highest number of requests that waited in the queue at once
+     * @return int      maximum observed queue depth
+     */
+    public int maxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Get the number of batches applied to the wrapped filter
+     * @return long     number of batches
+     */
+    public long batchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Get the number of requests applied to the wrapped filter
+     * @return long     number of processed requests
+     */
+    public long processedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Get the number of requests rejected because the queue was full or the filter was closed
+     * @return long     number of rejected requests
+     */
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Stop accepting requests, apply the queued ones and stop the worker thread.
+     * Waits for the worker unless called from the worker itself, like from a callback of a returned future.
+     */
+    @Override
+    public void close() {
+        running = false;
+        executor.shutdown();
+        if (Thread.currentThread() == worker) {
+            // The worker applies the queued requests after the current callback returns
+            return;
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(Operation operation, T value) {
+        Request<T> request = new Request<>(operation, value);
+        if (!running || !queue.offer(request)) {
+            rejectedCount.incrementAndGet();
+            request.result.completeExceptionally(new RejectedExecutionException(
+                    running ? "Request queue is full" : "Bloom filter is closed"));
+            return request.result;
+        }
+        // The worker may have seen the queue empty and stopped while this request was offered
+        if (!running && queue.remove(request)) {
+            rejectedCount.incrementAndGet();
+            request.result.completeExceptionally(new RejectedExecutionException("Bloom filter is closed"));
+            return request.result;
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return request.result;
+    }
+
+    private void drain() {
+        worker = Thread.currentThread();
+        List<Request<T>> batch = new ArrayList<>(maxBatchSize);
+        Throwable failure = null;
+        try {
+            while (running || !queue.isEmpty()) {
+                collectBatch(batch);
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // An Error in the wrapped filter, like running out of memory while scaling up, stops the worker
+            failure = e;
+            throw e;
+        } finally {
+            // Nothing applies requests once the worker stops, so reject the unfinished and queued ones
+            running = false;
+            queue.drainTo(batch);
+            RejectedExecutionException rejection = new RejectedExecutionException(
+                    failure == null ? "Bloom filter is closed" : "Bloom filter worker stopped", failure);
+            batch.forEach(request -> request.result.completeExceptionally(rejection));
+        }
+    }
+
+    private void collectBatch(List<Request<T>> batch) throws InterruptedException {
+        // Wake up periodically while idle so close is noticed
+        Request<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        // Keep taking requests that arrive meanwhile, but never wait on an empty queue
+        long deadline = System.nanoTime() + maxLatencyNanos;
+        while (batch.size() < maxBatchSize && deadline - System.nanoTime() > 0) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) == 0) {
+                return;
+            }
+        }
+    }
+
+    private void apply(List<Request<T>> batch) {
+        batchCount.incrementAndGet();
+        processedCount.addAndGet(batch.size());
+        for (Request<T> request : batch) {
+            try {
+                switch (request.operation) {
+                    case CONTAINS -> request.result.complete(bloomFilter.contains(request.value));
+                    case ADD -> {
+                        bloomFilter.add(request.value);
+                        request.result.complete(true);
+                    }
+                    case CONTAINS_OR_ADD -> request.result.complete(bloomFilter.containsOrAdd(request.value));
+                }
+            } catch (RuntimeException e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Bitmap of one bloom filter tier that only commits memory for the regions that are used, apart from a small page table.
+ * The bits are split into pages of 65536 bits. A page is not allocated until one of its bits is set, then it starts
+ * as a sorted array of the set positions and is promoted to packed long words once that array would be as large as
+ * the words. Young tiers created by scaling up are mostly empty, so they stay small until they fill up.
+ */
+public class BitMap {
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+    private static final int PAGE_WORDS = PAGE_BITS / Long.SIZE;
+    // A sparse page with this many positions takes as much memory as a dense page
+    private static final int MAX_SPARSE_SIZE = PAGE_BITS / Character.SIZE;
+    private static final int INITIAL_SPARSE_CAPACITY = 8;
+    // Size of an array element reference with compressed oops
+    private static final int REFERENCE_BYTES = 4;
+
+    private static final VarHandle PAGE = MethodHandles.arrayElementVarHandle(long[][].class);
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int length;
+    private final long[][] densePages;
+    private final char[][] sparsePages;
+    private final int[] sparseSizes;
+
+    public BitMap(int length) {
+        this.length = length;
+        int pageCount = (int) (((long) length + PAGE_BITS - 1) >>> PAGE_SHIFT);
+        this.densePages = new long[pageCount][];
+        this.sparsePages = new char[pageCount][];
+        this.sparseSizes = new int[pageCount];
+    }
+
+    /**
+     * Get the number of bits in the bitmap
+     * @return int          length of the bitmap
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Check if a bit is set
+     * @param bit           position of the bit
+     * @return boolean      true if the bit is set, false otherwise
+     */
+    public boolean get(int bit) {
+        int page = bit >>> PAGE_SHIFT;
+        long[] dense = densePages[page];
+        if (dense != null) {
+            return (dense[(bit & (PAGE_BITS - 1)) >>> 6] & (1L << bit)) != 0;
+        }
+        char[] sparse = sparsePages[page];
+        return sparse != null && Arrays.binarySearch(sparse, 0, sparseSizes[page], (char) bit) >= 0;
+    }
+
+    /**
+     * Set a bit, promoting its page to dense words when the sparse page is full
+     * @param bit           position of the bit
+     * @return boolean      true if the bit was not set before, false otherwise
+     */
+    public boolean set(int bit) {
+        int page = bit >>> PAGE_SHIFT;
+        long[] dense = densePages[page];
+        if (dense != null) {
+            return setInPage(dense, bit);
+        }
+
+        char[] sparse = sparsePages[page];
+        if (sparse == null) {
+            sparse = new char[INITIAL_SPARSE_CAPACITY];
+            sparsePages[page] = sparse;
+        }
+        int size = sparseSizes[page];
+        int index = Arrays.binarySearch(sparse, 0, size, (char) bit);
+        if (index >= 0) {
+            return false;
+        }
+        if (size == MAX_SPARSE_SIZE) {
+            return setInPage(promotePage(page), bit);
+        }
+        if (size == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(size * 2, MAX_SPARSE_SIZE));
+            sparsePages[page] = sparse;
+        }
+        int insertAt = -index - 1;
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, size - insertAt);
+        sparse[insertAt] = (char) bit;
+        sparseSizes[page] = size + 1;
+        return true;
+    }
+
+    /**
+     * Set a bit from several threads at once. Only valid after promote, while no thread calls set.
+     * Missing pages are allocated dense, and the word is updated atomically.
+     * @param bit           position of the bit
+     * @return boolean      true if the bit was not set before, false otherwise
+     */
+    public boolean setConcurrently(int bit) {
+        int page = bit >>> PAGE_SHIFT;
+        long[] dense = (long[]) PAGE.getAcquire(densePages, page);
+        if (dense == null) {
+            long[] created = new long[PAGE_WORDS];
+            long[] witness = (long[]) PAGE.compareAndExchange(densePages, page, (long[]) null, created);
+            dense = witness == null ? created : witness;
+        }
+        long mask = 1L << bit;
+        long previous = (long) WORD.getAndBitwiseOr(dense, (bit & (PAGE_BITS - 1)) >>> 6, mask);
+        return (previous & mask) == 0;
+    }
+
+    /**
+     * Promote every sparse page to dense words, required before setConcurrently
+     */
+    public void promote() {
+        for (int page = 0; page < sparsePages.length; page++) {
+            if (sparsePages[page] != null) {
+                promotePage(page);
+            }
+        }
+    }
+
+    /**
+     * Call the consumer with the position of every set bit in ascending order
+     * @param consumer      consumer of the set bit positions
+     */
+    public void forEachSetBit(IntConsumer consumer) {
+        for (int page = 0; page < densePages.length; page++) {
+            int base = page << PAGE_SHIFT;
+            long[] dense = densePages[page];
+            if (dense != null) {
+                for (int word = 0; word < dense.length; word++) {
+                    long bits = dense[word];
+                    while (bits != 0) {
+                        consumer.accept(base + (word << 6) + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            } else if (sparsePages[page] != null) {
+                char[] sparse = sparsePages[page];
+                for (int i = 0; i < sparseSizes[page]; i++) {
+                    consumer.accept(base + sparse[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the approximate number of bytes held by the page tables and the allocated pages
+     * @return long         committed bytes
+     */
+    public long committedBytes() {
+        // Two reference tables and the sparse sizes are allocated up front, one entry per page
+        long bytes = (long) densePages.length * (2 * REFERENCE_BYTES + Integer.BYTES);
+        for (int page = 0; page < densePages.length; page++) {
+            if (densePages[page] != null) {
+                bytes += (long) densePages[page].length * Long.BYTES;
+            } else if (sparsePages[page] != null) {
+                bytes += (long) sparsePages[page].length * Character.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private long[] promotePage(int page) {
+        long[] dense = new long[PAGE_WORDS];
+        char[] sparse = sparsePages[page];
+        for (int i = 0; i < sparseSizes[page]; i++) {
+            dense[sparse[i] >>> 6] |= 1L << sparse[i];
+        }
+        densePages[page] = dense;
+        sparsePages[page] = null;
+        sparseSizes[page] = 0;
+        return dense;
+    }
+
+    private static boolean setInPage(long[] dense, int bit) {
+        int word = (bit & (PAGE_BITS - 1)) >>> 6;
+        long mask = 1L << bit;
+        if ((dense[word] & mask) != 0) {
+            return false;
+        }
+        dense[word] |= mask;
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Builder that creates a MultiTierBloomFilter from a source of keys in bulk.
+ * The first bitmap is sized from the expected number of insertions and filled in parallel on a fork-join pool,
+ * so building from a large dump scales with the available cores instead of going through containsOrAdd one by one.
+ * The source is split across the pool, so reading, parsing and hashing the keys all run on its workers.
+ * Up front sizing is capped by the largest bitmap: at 0.01 a single bitmap holds about 7 million keys, and larger
+ * sources fill the following tiers created by scaling up, still in parallel.
+ *
+ * @param <T> the type of elements to be stored in the bloom filter
+ */
+public class BloomFilterBuilder<T> {
+
+    private double falsePositiveRatio = 0.1;
+    private boolean showLog = false;
+    private long expectedInsertions = 0;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Set the desired false positive ratio, defaults to 0.1
+     * @param falsePositiveRatio    the desired false positive ratio
+     * @return BloomFilterBuilder   this builder
+     */
+    public BloomFilterBuilder<T> falsePositiveRatio(double falsePositiveRatio) {
+        if (falsePositiveRatio <= 0 || falsePositiveRatio >= 1) {
+            throw new IllegalArgumentException("False positive ratio must be between 0 and 1, got " + falsePositiveRatio);
+        }
+        this.falsePositiveRatio = falsePositiveRatio;
+        return this;
+    }
+
+    /**
+     * Set the number or estimate of keys, used to size the first bitmap up to its maximum size.
+     * Extra keys scale the filter up as usual.
+     * @param expectedInsertions    expected number of keys
+     * @return BloomFilterBuilder   this builder
+     */
+    public BloomFilterBuilder<T> expectedInsertions(long expectedInsertions) {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions can not be negative, got " + expectedInsertions);
+        }
+        this.expectedInsertions = expectedInsertions;
+        return this;
+    }
+
+    /**
+     * Enable or disable logging of the built filter, disabled by default
+     * @param showLog               flag to enable or disable logging
+     * @return BloomFilterBuilder   this builder
+     */
+    public BloomFilterBuilder<T> showLog(boolean showLog) {
+        this.showLog = showLog;
+        return this;
+    }
+
+    /**
+     * Set the pool that fills the filter, defaults to the common pool
+     * @param pool                  pool that runs the parallel fill
+     * @return BloomFilterBuilder   this builder
+     */
+    public BloomFilterBuilder<T> pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Build a filter containing every key of the stream. The stream is made parallel, since a sequential pipeline
+     * can not be split and its intermediate operations would run on a single worker. The stream is not closed.
+     * @param keys                  keys to be added
+     * @return MultiTierBloomFilter the filled bloom filter
+     */
+    public MultiTierBloomFilter<T> build(Stream<T> keys) {
+        return build(keys.parallel().spliterator());
+    }
+
+    /**
+     * Build a filter containing every key of the spliterator
+     * @param keys                  keys to be added
+     * @return MultiTierBloomFilter the filled bloom filter
+     */
+    public MultiTierBloomFilter<T> build(Spliterator<T> keys) {
+        MultiTierBloomFilter<T> bloomFilter = new MultiTierBloomFilter<>(falsePositiveRatio, showLog, expectedInsertions);
+        bloomFilter.addAll(keys, pool);
+        return bloomFilter;
+    }
+
+    /**
+     * Build a filter containing one key per line of the file. Lines are read and parsed on the pool workers.
+     * @param file                  file with one key per line
+     * @param parser                converts a line into a key
+     * @return MultiTierBloomFilter the filled bloom filter
+     * @throws IOException          if the file can not be read
+     */
+    public MultiTierBloomFilter<T> build(Path file, Function<String, T> parser) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return build(lines.map(parser));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,5 +1,14 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Bloom filter implementation that uses horizontal scaling to scale up the bitmap size. It can play with very large number of loads.
@@ -10,20 +19,39 @@ import java.util.List;
  */
 public class MultiTierBloomFilter<T> extends AbstractBloomFilter<T> {
 
-    protected final List<boolean[]> bitMaps = new ArrayList<>();
+    // Smallest split of the source handed to one fork-join task while adding in bulk
+    private static final int MIN_SPLIT_SIZE = 1024;
+    // Number of values a task reserves from the last bitmap at once, so tasks rarely touch the shared counter
+    private static final int RESERVATION_SIZE = 256;
+
+    protected final List<BitMap> bitMaps = new ArrayList<>();
     protected final List<Integer> setBitsCount = new ArrayList<>();
 
     public MultiTierBloomFilter() {
         super();
         // Setting first bitmap size to 1000
-        this.bitMaps.add(new boolean[1000]);
+        this.bitMaps.add(new BitMap(1000));
         this.setBitsCount.add(0);
     }
 
     public MultiTierBloomFilter(double falsePositiveRatio, boolean showLog) {
         super(falsePositiveRatio, showLog);
         // Setting first bitmap size to 1000
-        this.bitMaps.add(new boolean[1000]);
+        this.bitMaps.add(new BitMap(1000));
+        this.setBitsCount.add(0);
+    }
+
+    /**
+     * Constructor that sizes the first bitmap up front, so the expected number of values fits without scaling up.
+     * A bitmap is limited to Integer.MAX_VALUE - 1 bits and holds at most falsePositiveRatio * 2^31 / hashes values,
+     * about 7 million at 0.01 with the default 3 hashes. Values beyond that go through the usual scale ups.
+     * @param falsePositiveRatio    the desired false positive ratio
+     * @param showLog               flag to enable or disable logging
+     * @param expectedInsertions    number of values expected to be added
+     */
+    public MultiTierBloomFilter(double falsePositiveRatio, boolean showLog, long expectedInsertions) {
+        super(falsePositiveRatio, showLog);
+        this.bitMaps.add(new BitMap(determineInitialBitMapSize(expectedInsertions)));
         this.setBitsCount.add(0);
     }
 
@@ -31,9 +59,11 @@ public class MultiTierBloomFilter<T> extends AbstractBloomFilter<T> {
     protected boolean isPlaceToAdd() {
         int totalSet = setBitsCount.getLast();
         // Subtracted 3 to get state after next addition worst case
-        int availableSize = bitMaps.getLast().length - totalSet - algorithms.size();
-        double falsePositiveRatio = calculateFalsePositiveRatio(availableSize, bitMaps.getLast().length);
-        log("Available size: " + availableSize + ", False positive ratio: " + falsePositiveRatio);
+        int availableSize = bitMaps.getLast().length() - totalSet - algorithms.size();
+        double falsePositiveRatio = calculateFalsePositiveRatio(availableSize, bitMaps.getLast().length());
+        if (isLogEnabled()) {
+            log("Available size: " + availableSize + ", False positive ratio: " + falsePositiveRatio);
+        }
         if (falsePositiveRatio >= this.falsePositiveRatio) {
             log("Can not add more bits to preserve false positive ratio");
             return false;
@@ -44,28 +74,29 @@ public class MultiTierBloomFilter<T> extends AbstractBloomFilter<T> {
 
     @Override
     void addToBitMap(List<Long> setBits) {
-        setBits.stream()
-                .map(Long::intValue)
-                .forEach(bit -> {
-                    boolean[] bitMap = bitMaps.getLast();
-                    if (!bitMap[bit]) {
-                        bitMap[bit] = true;
-                        setBitsCount.add(setBitsCount.removeLast() + 1);
-                    }
-                });
+        BitMap bitMap = bitMaps.getLast();
+        int newlySet = 0;
+        for (int i = 0; i < setBits.size(); i++) {
+            if (bitMap.set(setBits.get(i).intValue())) {
+                newlySet++;
+            }
+        }
+        if (newlySet > 0) {
+            setBitsCount.add(setBitsCount.removeLast() + newlySet);
+        }
     }
 
     @Override
     protected void scaleUp() {
         int newBitMapSize = determineNewBitMapSize();
-        boolean[] newBitMap = new boolean[newBitMapSize];
+        BitMap newBitMap = new BitMap(newBitMapSize);
         bitMaps.add(newBitMap);
         setBitsCount.add(0);
-        log("New bitmap added in list. Size is " + newBitMap.length);
+        log("New bitmap added in list. Size is " + newBitMap.length());
     }
 
     protected int determineNewBitMapSize() {
-        long newBitMapSize = bitMaps.getLast().length;
+        long newBitMapSize = bitMaps.getLast().length();
 
         double falsePositiveRatio = Integer.MAX_VALUE;
         while(falsePositiveRatio > this.falsePositiveRatio) {
@@ -83,40 +114,62 @@ public class MultiTierBloomFilter<T> extends AbstractBloomFilter<T> {
         return (int) newBitMapSize;
     }
 
+    protected int determineInitialBitMapSize(long expectedInsertions) {
+        // Every value sets at most one bit per hash, and the set bits must stay below the false positive ratio
+        double requiredSize = Math.ceil((expectedInsertions + 1) * (double) algorithms.size() / this.falsePositiveRatio);
+        if (requiredSize >= Integer.MAX_VALUE - 1) {
+            log("The initial bitmap size is too large, setting it to " + (Integer.MAX_VALUE - 1));
+            return Integer.MAX_VALUE - 1;
+        }
+        log("Initial bitmap size is " + (int) Math.max(1000, requiredSize));
+        return (int) Math.max(1000, requiredSize);
+    }
+
     protected double calculateFalsePositiveRatio(double availableSize, double totalSize) {
         return 1.0 - (availableSize / totalSize);
     }
 
     @Override
     long getTargetBitmapSize() {
-        return bitMaps.getLast().length;
+        return bitMaps.getLast().length();
     }
 
     @Override
     public boolean contains(T value) {
-        log("Checking if value " + value.toString() + " is present in the bloom filter");
+        if (isLogEnabled()) {
+            log("Checking if value " + value.toString() + " is present in the bloom filter");
+        }
         for (int i=0; i<bitMaps.size(); i++) {
             boolean allSet = checkForTier(i, value);
             if (allSet) {
                 return true;
             }
         }
-        log("Value " + value.toString() + " is not present in the bloom filter");
+        if (isLogEnabled()) {
+            log("Value " + value.toString() + " is not present in the bloom filter");
+        }
         return false;
     }
 
     protected boolean checkForTier(int i, T value) {
-        log("Checking for tier " + i);
-        boolean[] bitMap = bitMaps.get(i);
-        List<Long> setBits = getSetBits(value, bitMap.length);
-        log("Set bits: " + setBits);
-        for(Long bit : setBits) {
-            if (!bitMap[bit.intValue()]) {
-                log("Bit " + bit + " is not set");
+        BitMap bitMap = bitMaps.get(i);
+        if (isLogEnabled()) {
+            log("Checking for tier " + i);
+            log("Set bits: " + getSetBits(value, bitMap.length()));
+        }
+        // Probing hash by hash lets a miss exit before the remaining hashes are computed
+        for (int h = 0; h < algorithms.size(); h++) {
+            int bit = (int) algorithms.get(h).hash(value, bitMap.length());
+            if (!bitMap.get(bit)) {
+                if (isLogEnabled()) {
+                    log("Bit " + bit + " is not set");
+                }
                 return false;
             }
         }
-        log("All bits are set for tier " + i);
+        if (isLogEnabled()) {
+            log("All bits are set for tier " + i);
+        }
         return true;
     }
 
@@ -131,15 +184,149 @@ public class MultiTierBloomFilter<T> extends AbstractBloomFilter<T> {
     }
 
     protected List<Long> getSetBits(T value, int limit) {
-        return algorithms.stream()
-                .map(algorithm -> algorithm.hash(value, limit))
-                .toList();
+        List<Long> setBits = new ArrayList<>(algorithms.size());
+        for (int h = 0; h < algorithms.size(); h++) {
+            setBits.add(algorithms.get(h).hash(value, limit));
+        }
+        return setBits;
     }
 
     @Override
     protected List<Long> getSetBits(T value) {
-        return algorithms.stream()
-                .map(algorithm -> algorithm.hash(value, getTargetBitmapSize()))
-                .toList();
+        return getSetBits(value, (int) getTargetBitmapSize());
+    }
+
+    /**
+     * Add all values of the spliterator. The spliterator is split with trySplit into fork-join tasks on the given
+     * pool, and every task hashes its own values and sets their bits in the last bitmap directly. Tasks reserve
+     * their values from the remaining place of the last bitmap with a shared counter. Once it is used up, the tasks
+     * hand back the rest of their splits, the filter scales up and the rest is added to the new bitmap the same way.
+     * Values are not checked with contains first, and the filter must not be used by other threads until this returns.
+     * @param values        values to be added
+     * @param pool          pool that runs the parallel fill
+     */
+    protected void addAll(Spliterator<T> values, ForkJoinPool pool) {
+        List<Spliterator<T>> sources = new ArrayList<>(List.of(values));
+        while (!sources.isEmpty()) {
+            long capacity = remainingCapacity();
+            if (capacity <= 0 && setBitsCount.getLast() > 0) {
+                scaleUp();
+                continue;
+            }
+            if (capacity <= 0) {
+                // An empty bitmap too small for a guaranteed place still takes values one by one
+                if (!sources.getLast().tryAdvance(this::insert)) {
+                    sources.removeLast();
+                }
+                continue;
+            }
+
+            FillPass pass = new FillPass(capacity, sources, pool.getParallelism());
+            List<FillTask> tasks = new ArrayList<>(sources.size());
+            for (Spliterator<T> source : sources) {
+                tasks.add(new FillTask(source, pass));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+            long setBits = setBitsCount.removeLast() + pass.newlySet.sum();
+            setBitsCount.add((int) setBits);
+            if (isLogEnabled()) {
+                log("Filled bitmap in parallel, set bits: " + setBits + ", refused values: " + pass.refused.size());
+            }
+            // Values refused for lack of place go through the usual insert, which scales up
+            for (T value = pass.refused.poll(); value != null; value = pass.refused.poll()) {
+                insert(value);
+            }
+            sources = new ArrayList<>(pass.leftovers);
+        }
+    }
+
+    /**
+     * Number of values that can still be added to the last bitmap before isPlaceToAdd refuses
+     * @return long         remaining number of values
+     */
+    protected long remainingCapacity() {
+        double allowedSetBits = this.falsePositiveRatio * bitMaps.getLast().length();
+        return (long) ((allowedSetBits - setBitsCount.getLast()) / algorithms.size()) - 1;
+    }
+
+    // State shared by the tasks filling the last bitmap until its remaining place is used up
+    private final class FillPass {
+        private final BitMap bitMap = bitMaps.getLast();
+        private final long capacity;
+        private final long splitSize;
+        private final AtomicLong reserved = new AtomicLong();
+        private final LongAdder newlySet = new LongAdder();
+        private final Queue<T> refused = new ConcurrentLinkedQueue<>();
+        private final Queue<Spliterator<T>> leftovers = new ConcurrentLinkedQueue<>();
+
+        private FillPass(long capacity, List<Spliterator<T>> sources, int parallelism) {
+            this.capacity = capacity;
+            long estimatedSize = 0;
+            for (Spliterator<T> source : sources) {
+                estimatedSize = Math.max(estimatedSize, estimatedSize + source.estimateSize());
+            }
+            // A few splits per worker keeps them busy when the splits are uneven
+            this.splitSize = Math.max(MIN_SPLIT_SIZE, estimatedSize / (parallelism * 4L));
+            // Workers share the bitmap and set its words atomically, which needs every page to be dense
+            bitMap.promote();
+        }
+
+        private void set(T value) {
+            for (int h = 0; h < algorithms.size(); h++) {
+                if (bitMap.setConcurrently((int) algorithms.get(h).hash(value, bitMap.length()))) {
+                    newlySet.increment();
+                }
+            }
+        }
+    }
+
+    private final class FillTask extends RecursiveAction implements Consumer<T> {
+        private final Spliterator<T> values;
+        private final FillPass pass;
+        private long granted;
+        private boolean full;
+
+        private FillTask(Spliterator<T> values, FillPass pass) {
+            this.values = values;
+            this.pass = pass;
+        }
+
+        @Override
+        protected void compute() {
+            List<FillTask> forks = new ArrayList<>();
+            Spliterator<T> split;
+            while (values.estimateSize() > pass.splitSize && (split = values.trySplit()) != null) {
+                FillTask fork = new FillTask(split, pass);
+                fork.fork();
+                forks.add(fork);
+            }
+            while (!full && values.tryAdvance(this)) {
+                // Values are added by accept
+            }
+            if (full) {
+                pass.leftovers.add(values);
+            }
+            for (int i = forks.size() - 1; i >= 0; i--) {
+                forks.get(i).join();
+            }
+        }
+
+        @Override
+        public void accept(T value) {
+            if (granted == 0 && !reserve()) {
+                pass.refused.add(value);
+                full = true;
+                return;
+            }
+            granted--;
+            pass.set(value);
+        }
+
+        private boolean reserve() {
+            long start = pass.reserved.getAndAdd(RESERVATION_SIZE);
+            granted = Math.max(0, Math.min(RESERVATION_SIZE, pass.capacity - start));
+            return granted > 0;
+        }
     }
 }
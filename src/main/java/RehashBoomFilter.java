@@ -18,27 +18,25 @@ public class RehashBoomFilter <T> extends MultiTierBloomFilter <T> {
     @Override
     protected void scaleUp() {
         int determineNewBitMapSize = determineNewBitMapSize();
-        boolean[] oldBitMap = bitMaps.getLast();
-        int newSize = oldBitMap.length;
+        BitMap oldBitMap = bitMaps.getLast();
+        int newSize = oldBitMap.length();
 
         while(newSize < determineNewBitMapSize) {
             newSize = newSize * 2;
         }
 
-        boolean[] newBitMap = new boolean[newSize];
+        BitMap newBitMap = new BitMap(newSize);
         rehash(oldBitMap, newBitMap);
         bitMaps.clear();
         bitMaps.add(newBitMap);
-        log("Initialized with new size. Size is " + newBitMap.length);
+        log("Initialized with new size. Size is " + newBitMap.length());
     }
 
-    private void rehash(boolean[] oldBitMap, boolean[] newBitMap) {
-        for (int i = 0; i < oldBitMap.length; i++) {
-            if (oldBitMap[i]) {
-                int newIndex = (i * 2) % newBitMap.length;
-                newBitMap[newIndex] = true;
-            }
-        }
+    private void rehash(BitMap oldBitMap, BitMap newBitMap) {
+        oldBitMap.forEachSetBit(i -> {
+            int newIndex = (i * 2) % newBitMap.length();
+            newBitMap.set(newIndex);
+        });
     }
 
 }
@@ -5,7 +5,15 @@ public class CurrentTimeAdder<T> extends HashCodeOnly<T> {
     private final long time;
 
     public CurrentTimeAdder() {
-        this.time = System.currentTimeMillis();
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor with a fixed time, so the hash values are the same on every run
+     * @param time          time added to every hash
+     */
+    public CurrentTimeAdder(long time) {
+        this.time = time;
     }
 
     @Override
@@ -2,6 +2,13 @@ package hash.algorithms;
 
 public class CurrentTimeAdderReverseHash<T> extends CurrentTimeAdder<T> {
 
+    public CurrentTimeAdderReverseHash() {
+    }
+
+    public CurrentTimeAdderReverseHash(long time) {
+        super(time);
+    }
+
     @Override
     protected long getHashAsLong(T value) {
         int hash = value.hashCode();
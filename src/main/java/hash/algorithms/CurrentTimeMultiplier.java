@@ -5,7 +5,15 @@ public class CurrentTimeMultiplier<T> extends HashCodeOnly<T> {
     private final long time;
 
     public CurrentTimeMultiplier() {
-        this.time = System.currentTimeMillis();
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor with a fixed time, so the hash values are the same on every run
+     * @param time          time added to every hash
+     */
+    public CurrentTimeMultiplier(long time) {
+        this.time = time;
     }
 
     @Override
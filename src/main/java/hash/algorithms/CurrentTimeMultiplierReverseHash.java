@@ -2,6 +2,13 @@ package hash.algorithms;
 
 public class CurrentTimeMultiplierReverseHash<T> extends CurrentTimeMultiplier<T> {
 
+    public CurrentTimeMultiplierReverseHash() {
+    }
+
+    public CurrentTimeMultiplierReverseHash(long time) {
+        super(time);
+    }
+
     @Override
     protected long getHashAsLong(T value) {
         int hash = value.hashCode();
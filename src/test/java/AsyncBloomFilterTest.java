@@ -0,0 +1,146 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+
+public class AsyncBloomFilterTest {
+
+    @Test
+    @DisplayName("Adding 10000 elements from several threads, all must exist")
+    public void testConcurrentContainsOrAddAllMustExist() {
+        try (AsyncBloomFilter<Integer> bloomFilter = new AsyncBloomFilter<>(new MultiTierBloomFilter<>(0.01, false))) {
+            List<CompletableFuture<Boolean>> added = IntStream.range(0, 10000).parallel()
+                    .mapToObj(bloomFilter::containsOrAdd)
+                    .toList();
+            added.forEach(CompletableFuture::join);
+
+            for (int i = 0; i < 10000; i++) {
+                Assertions.assertTrue(bloomFilter.contains(i).join());
+            }
+            Assertions.assertEquals(20000, bloomFilter.processedCount());
+            Assertions.assertTrue(bloomFilter.batchCount() < bloomFilter.processedCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Add completes after the value is added")
+    public void testAddThenContains() {
+        try (AsyncBloomFilter<String> bloomFilter = new AsyncBloomFilter<>(new MultiTierBloomFilter<>(0.01, false))) {
+            bloomFilter.add("value").join();
+
+            Assertions.assertTrue(bloomFilter.containsOrAdd("value").join());
+        }
+    }
+
+    @Test
+    @DisplayName("Requests beyond the queue capacity are rejected")
+    public void testFullQueueRejects() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BloomFilter<Integer> blockingFilter = new MultiTierBloomFilter<>(0.01, false) {
+            @Override
+            public boolean contains(Integer value) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.contains(value);
+            }
+        };
+
+        try (AsyncBloomFilter<Integer> bloomFilter = new AsyncBloomFilter<>(blockingFilter, 1, Duration.ZERO, 2)) {
+            CompletableFuture<Boolean> blocked = bloomFilter.contains(0);
+            started.await();
+
+            List<CompletableFuture<Boolean>> queued = new ArrayList<>();
+            queued.add(bloomFilter.contains(1));
+            queued.add(bloomFilter.contains(2));
+            CompletableFuture<Boolean> rejected = bloomFilter.contains(3);
+
+            CompletionException exception = Assertions.assertThrows(CompletionException.class, rejected::join);
+            Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+            Assertions.assertEquals(2, bloomFilter.queueDepth());
+            Assertions.assertEquals(2, bloomFilter.maxQueueDepth());
+            Assertions.assertEquals(1, bloomFilter.rejectedCount());
+
+            release.countDown();
+            Assertions.assertFalse(blocked.join());
+            queued.forEach(CompletableFuture::join);
+        }
+    }
+
+    @Test
+    @DisplayName("Requests after close are rejected")
+    public void testClosedRejects() {
+        AsyncBloomFilter<Integer> bloomFilter = new AsyncBloomFilter<>(new MultiTierBloomFilter<>(0.01, false));
+        CompletableFuture<Boolean> beforeClose = bloomFilter.containsOrAdd(1);
+        bloomFilter.close();
+
+        Assertions.assertFalse(beforeClose.join());
+        CompletionException exception = Assertions.assertThrows(CompletionException.class,
+                () -> bloomFilter.contains(1).join());
+        Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    @DisplayName("An error in the wrapped filter fails the pending and later requests")
+    public void testErrorStopsWorker() {
+        BloomFilter<Integer> failingFilter = new MultiTierBloomFilter<>(0.01, false) {
+            @Override
+            public boolean containsOrAdd(Integer value) {
+                throw new OutOfMemoryError("Simulated while scaling up");
+            }
+        };
+
+        try (AsyncBloomFilter<Integer> bloomFilter = new AsyncBloomFilter<>(failingFilter)) {
+            CompletionException exception = Assertions.assertThrows(CompletionException.class,
+                    () -> bloomFilter.containsOrAdd(1).join());
+            Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+            Assertions.assertTrue(exception.getCause().getCause() instanceof OutOfMemoryError);
+
+            exception = Assertions.assertThrows(CompletionException.class, () -> bloomFilter.contains(1).join());
+            Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    @DisplayName("Closing from a callback of a returned future does not wait for itself")
+    public void testCloseFromCallback() throws InterruptedException {
+        CountDownLatch callbackAttached = new CountDownLatch(1);
+        BloomFilter<Integer> delayedFilter = new MultiTierBloomFilter<>(0.01, false) {
+            @Override
+            public boolean contains(Integer value) {
+                try {
+                    callbackAttached.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.contains(value);
+            }
+        };
+        AsyncBloomFilter<Integer> bloomFilter = new AsyncBloomFilter<>(delayedFilter);
+        CountDownLatch closed = new CountDownLatch(1);
+
+        CompletableFuture<Void> callback = bloomFilter.contains(0).thenRun(() -> {
+            bloomFilter.close();
+            closed.countDown();
+        });
+        CompletableFuture<Boolean> queued = bloomFilter.containsOrAdd(1);
+        callbackAttached.countDown();
+
+        closed.await();
+        callback.join();
+        Assertions.assertFalse(queued.join());
+        bloomFilter.close();
+    }
+}
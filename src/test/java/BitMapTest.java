@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class BitMapTest {
+
+    @Test
+    @DisplayName("A new bitmap only commits its page table")
+    public void testNewBitMapIsEmpty() {
+        BitMap bitMap = new BitMap(Integer.MAX_VALUE - 1);
+
+        // 32768 pages of 65536 bits, each with two references and an int, against 256 MB for dense words
+        Assertions.assertEquals(32768 * 12, bitMap.committedBytes());
+        Assertions.assertFalse(bitMap.get(0));
+        Assertions.assertFalse(bitMap.get(Integer.MAX_VALUE - 2));
+    }
+
+    @Test
+    @DisplayName("Setting bits returns true only for the first time")
+    public void testSetReturnsTrueOnlyOnce() {
+        BitMap bitMap = new BitMap(1000);
+
+        Assertions.assertTrue(bitMap.set(42));
+        Assertions.assertFalse(bitMap.set(42));
+        Assertions.assertTrue(bitMap.get(42));
+        Assertions.assertFalse(bitMap.get(41));
+    }
+
+    @Test
+    @DisplayName("A few bits in a large bitmap stay sparse")
+    public void testFewBitsStaySparse() {
+        BitMap bitMap = new BitMap(Integer.MAX_VALUE - 1);
+        Random random = new Random();
+
+        for (int i = 0; i < 1000; i++) {
+            bitMap.set(random.nextInt(Integer.MAX_VALUE - 1));
+        }
+
+        // A dense copy of the same bitmap would take 256 MB
+        Assertions.assertTrue(bitMap.committedBytes() < 1024 * 1024);
+    }
+
+    @Test
+    @DisplayName("Sparse and dense pages match a BitSet")
+    public void testMatchesBitSet() {
+        BitMap bitMap = new BitMap(300000);
+        BitSet expected = new BitSet(300000);
+        Random random = new Random();
+
+        // Fill the first page past the sparse limit and leave the others sparse
+        for (int i = 0; i < 20000; i++) {
+            int bit = i % 4 == 0 ? random.nextInt(300000) : random.nextInt(65536);
+            Assertions.assertEquals(!expected.get(bit), bitMap.set(bit));
+            expected.set(bit);
+        }
+
+        for (int i = 0; i < 300000; i++) {
+            Assertions.assertEquals(expected.get(i), bitMap.get(i));
+        }
+        List<Integer> setBits = new ArrayList<>();
+        bitMap.forEachSetBit(setBits::add);
+        Assertions.assertEquals(expected.stream().boxed().toList(), setBits);
+    }
+
+    @Test
+    @DisplayName("Concurrent setting after promotion keeps every bit")
+    public void testSetConcurrently() {
+        BitMap bitMap = new BitMap(1000000);
+        bitMap.set(7);
+        bitMap.promote();
+
+        long newlySet = IntStream.range(0, 1000000).parallel()
+                .filter(i -> i % 3 == 0)
+                .filter(bitMap::setConcurrently)
+                .count();
+
+        Assertions.assertEquals(333334, newlySet);
+        Assertions.assertTrue(bitMap.get(7));
+        for (int i = 0; i < 1000000; i++) {
+            Assertions.assertEquals(i % 3 == 0 || i == 7, bitMap.get(i));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+
+public class BloomFilterBuilderTest {
+
+    @Test
+    @DisplayName("Building from a stream of 100000 elements, all must exist")
+    public void testBuildFromStreamAllMustExist() {
+        MultiTierBloomFilter<Integer> bloomFilter = new BloomFilterBuilder<Integer>()
+                .falsePositiveRatio(0.01)
+                .expectedInsertions(100000)
+                .build(IntStream.range(0, 100000).boxed());
+
+        for (int i = 0; i < 100000; i++) {
+            Assertions.assertTrue(bloomFilter.contains(i));
+        }
+        Assertions.assertEquals(1, bloomFilter.bitMaps.size());
+    }
+
+    @Test
+    @DisplayName("Building with an underestimated count scales up")
+    public void testBuildWithUnderestimatedCountScalesUp() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MultiTierBloomFilter<Integer> bloomFilter = new BloomFilterBuilder<Integer>()
+                    .falsePositiveRatio(0.01)
+                    .expectedInsertions(1000)
+                    .pool(pool)
+                    .build(IntStream.range(0, 100000).boxed().parallel());
+
+            for (int i = 0; i < 100000; i++) {
+                Assertions.assertTrue(bloomFilter.contains(i));
+            }
+            Assertions.assertTrue(bloomFilter.bitMaps.size() > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Building from a file, all must exist")
+    public void testBuildFromFileAllMustExist(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("keys.txt");
+        List<String> keys = IntStream.range(0, 10000).mapToObj(i -> "key-" + i).toList();
+        Files.write(file, keys);
+
+        MultiTierBloomFilter<String> bloomFilter = new BloomFilterBuilder<String>()
+                .falsePositiveRatio(0.01)
+                .expectedInsertions(keys.size())
+                .build(file, line -> line);
+
+        for (String key : keys) {
+            Assertions.assertTrue(bloomFilter.contains(key));
+        }
+    }
+
+    @Test
+    @DisplayName("Building from a file parses the lines on the pool workers")
+    public void testBuildFromFileParsesOnPool(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("keys.txt");
+        List<String> keys = IntStream.range(0, 100000).mapToObj(i -> "key-" + i).toList();
+        Files.write(file, keys);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Set<Thread> parsers = ConcurrentHashMap.newKeySet();
+        try {
+            MultiTierBloomFilter<String> bloomFilter = new BloomFilterBuilder<String>()
+                    .falsePositiveRatio(0.01)
+                    .expectedInsertions(1000)
+                    .pool(pool)
+                    .build(file, line -> {
+                        parsers.add(Thread.currentThread());
+                        return line;
+                    });
+
+            for (String key : keys) {
+                Assertions.assertTrue(bloomFilter.contains(key));
+            }
+            for (Thread parser : parsers) {
+                Assertions.assertTrue(parser instanceof ForkJoinWorkerThread worker && worker.getPool() == pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Checking of 1000 elements false positive rate after bulk build")
+    public void testBuildAndCheck1000ItemsFalsePositiveRatio() {
+        double setFPR = 0.01;
+        Random random = new Random();
+        Set<Integer> set = new HashSet<>();
+        while (set.size() < 2000) {
+            set.add(random.nextInt());
+        }
+        List<Integer> list = set.stream().toList();
+        List<Integer> pushedItems = list.subList(0, 1000);
+        List<Integer> notPushedItems = list.subList(1000, 2000);
+
+        MultiTierBloomFilter<Integer> bloomFilter = new BloomFilterBuilder<Integer>()
+                .falsePositiveRatio(setFPR)
+                .expectedInsertions(pushedItems.size())
+                .build(pushedItems.stream());
+
+        int falsePositiveCount = 0;
+        for (int item : notPushedItems) {
+            falsePositiveCount += bloomFilter.contains(item) ? 1 : 0;
+        }
+
+        double falsePositiveRatio = (double) falsePositiveCount / notPushedItems.size();
+        System.out.println("False positive ratio: " + falsePositiveRatio);
+        Assertions.assertTrue(falsePositiveRatio <= setFPR * 2);
+    }
+}
@@ -0,0 +1,430 @@
+import hash.Hash;
+import hash.algorithms.CurrentTimeAdderReverseHash;
+import hash.algorithms.CurrentTimeMultiplier;
+import hash.algorithms.CurrentTimeMultiplierReverseHash;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Accuracy and throughput evaluation of the bloom filters.
+ * Inserts N keys of every distribution, probes M keys that were never inserted and measures the observed false
+ * positive ratio overall and per tier, bits per element, ns/op and allocated bytes/op. The results are written as JSON
+ * to build/reports/bloom-evaluation/report.json. The filters use the default hashes with a fixed time, so a run with
+ * the same settings sets the same bits and observes the same ratios.
+ * A run fails when a filter misses an inserted key, or a tier's or the overall observed false positive ratio is above
+ * the configured one. Cases known to exceed the configured ratio are listed with their accepted overall or highest
+ * tier ratio in bloom-evaluation-known-failures.properties, and fail when they get worse than that.
+ * The same file holds the accepted allocated bytes/op and time of every case, and a run fails when an operation
+ * allocates or takes clearly more than that. Times are taken relative to a fixed calibration loop timed in the same
+ * JVM, so they carry over between machines, and the best of a few runs is kept to leave out warm-up and noise.
+ * Settings are read from system properties: bloom.eval.n, bloom.eval.m, bloom.eval.fpp, bloom.eval.seed,
+ * bloom.eval.hashSalt, bloom.eval.fppTolerance and bloom.eval.timeTolerance.
+ */
+public class BloomFilterEvaluationTest {
+
+    private static final int N = Integer.getInteger("bloom.eval.n", 100000);
+    private static final int M = Integer.getInteger("bloom.eval.m", 100000);
+    private static final double FPP = Double.parseDouble(System.getProperty("bloom.eval.fpp", "0.01"));
+    private static final long SEED = Long.getLong("bloom.eval.seed", 42L);
+    // Time used by the hashes instead of the current time
+    private static final long HASH_SALT = Long.getLong("bloom.eval.hashSalt", 1735689600000L);
+    // Allowed factor over the configured ratio, covers the sampling error of M probes when the settings change
+    private static final double FPP_TOLERANCE = Double.parseDouble(System.getProperty("bloom.eval.fppTolerance", "1.5"));
+    // Allowed factor over the ratio of a known failure, the same settings give the same ratio
+    private static final double KNOWN_FAILURE_TOLERANCE = 1.1;
+    // Allowed factor and slack over the accepted bytes/op, covers allocations the JIT does not always eliminate
+    private static final double BYTES_TOLERANCE = 1.25;
+    private static final double BYTES_ALLOWANCE = 16;
+    // Allowed factor over the accepted time relative to the calibration loop, timings stay noisy on shared machines
+    private static final double TIME_TOLERANCE = Double.parseDouble(System.getProperty("bloom.eval.timeTolerance", "2.0"));
+    private static final int REPETITIONS = 3;
+    private static final int CALIBRATION_OPS = 1 << 20;
+    private static final Path REPORT = Path.of("build", "reports", "bloom-evaluation", "report.json");
+
+    private static final List<String> reports = new ArrayList<>();
+    private static final Properties knownFailures = loadKnownFailures();
+    // Keeps the result of the calibration loop alive
+    private static volatile long calibrationSink;
+
+    private enum KeyDistribution {
+        SEQUENTIAL_INTS, RANDOM_LONGS, UUID_STRINGS, ZIPFIAN
+    }
+
+    private static final class Keys {
+        private final List<Object> inserted = new ArrayList<>();
+        private final List<Object> probes = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Evaluating MultiTierBloomFilter")
+    public void testEvaluateMultiTierBloomFilter() {
+        evaluateAndCheck("MultiTierBloomFilter", () -> new MultiTierBloomFilter<>(FPP, false) {
+            @Override
+            protected void setHashes() {
+                setSaltedHashes(algorithms);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Evaluating MultiTierBloomFilter sized for N")
+    public void testEvaluateSizedMultiTierBloomFilter() {
+        evaluateAndCheck("MultiTierBloomFilter(expectedInsertions)", () -> new MultiTierBloomFilter<>(FPP, false, N) {
+            @Override
+            protected void setHashes() {
+                setSaltedHashes(algorithms);
+            }
+        });
+    }
+
+    @AfterAll
+    public static void writeReport() throws IOException {
+        // RehashBoomFilter maps a set bit i to 2i when it rehashes and loses inserted keys, so it is only reported
+        evaluate("RehashBoomFilter", () -> new RehashBoomFilter<>(FPP, false) {
+            @Override
+            protected void setHashes() {
+                setSaltedHashes(algorithms);
+            }
+        }, false);
+
+        Files.createDirectories(REPORT.getParent());
+        String json = String.format(Locale.ROOT,
+                "{\n  \"n\": %d,\n  \"m\": %d,\n  \"configuredFpp\": %s,\n  \"seed\": %d,\n  \"hashSalt\": %d,\n"
+                        + "  \"results\": [\n%s\n  ]\n}\n",
+                N, M, FPP, SEED, HASH_SALT, String.join(",\n", reports));
+        Files.writeString(REPORT, json);
+        System.out.println("Evaluation report written to " + REPORT.toAbsolutePath());
+    }
+
+    private static void setSaltedHashes(List<Hash<Object>> algorithms) {
+        // Same hashes as AbstractBloomFilter.setHashes, with a fixed time
+        algorithms.add(new CurrentTimeMultiplier<>(HASH_SALT));
+        algorithms.add(new CurrentTimeMultiplierReverseHash<>(HASH_SALT));
+        algorithms.add(new CurrentTimeAdderReverseHash<>(HASH_SALT));
+    }
+
+    private static void evaluateAndCheck(String name, Supplier<MultiTierBloomFilter<Object>> factory) {
+        List<String> failures = evaluate(name, factory, true);
+        Assertions.assertTrue(failures.isEmpty(), name + " failed the evaluation:\n" + String.join("\n", failures));
+    }
+
+    private static List<String> evaluate(String name, Supplier<MultiTierBloomFilter<Object>> factory, boolean checked) {
+        List<String> failures = new ArrayList<>();
+        for (KeyDistribution distribution : KeyDistribution.values()) {
+            Keys keys = generateKeys(distribution, new Random(SEED));
+            Measurement measurement = run(factory, keys);
+            MultiTierBloomFilter<Object> bloomFilter = measurement.bloomFilter;
+            double tierLimit = limit(name + "." + distribution + ".tier");
+            double overallLimit = limit(name + "." + distribution + ".overall");
+            String report = toJson(name, distribution, keys, bloomFilter, measurement, checked ? overallLimit : null);
+            System.out.println(report);
+            synchronized (reports) {
+                reports.add(report);
+            }
+
+            if (measurement.falseNegatives > 0) {
+                failures.add(distribution + ": " + measurement.falseNegatives + " inserted keys were not found");
+            }
+            for (int tier = 0; tier < measurement.tierFalsePositives.length; tier++) {
+                double tierFpp = (double) measurement.tierFalsePositives[tier] / measurement.probes;
+                if (tierFpp > tierLimit) {
+                    failures.add(distribution + ": observed false positive ratio " + tierFpp + " of tier " + tier
+                            + " is above the limit " + tierLimit);
+                }
+            }
+            if (measurement.observedFpp() > overallLimit) {
+                failures.add(distribution + ": observed false positive ratio " + measurement.observedFpp()
+                        + " is above the limit " + overallLimit);
+            }
+            // The accepted costs were measured with the settings of the file, so there is nothing to compare otherwise
+            if (checked && !knownFailures.isEmpty()) {
+                String prefix = name + "." + distribution;
+                checkCost(failures, prefix + ".insertBytesPerOp", measurement.insertBytesPerOp(),
+                        BYTES_TOLERANCE, BYTES_ALLOWANCE);
+                checkCost(failures, prefix + ".probeBytesPerOp", measurement.probeBytesPerOp(),
+                        BYTES_TOLERANCE, BYTES_ALLOWANCE);
+                checkCost(failures, prefix + ".insertTimeRatio", measurement.insertTimeRatio(), TIME_TOLERANCE, 0);
+                checkCost(failures, prefix + ".probeTimeRatio", measurement.probeTimeRatio(), TIME_TOLERANCE, 0);
+            }
+        }
+        return failures;
+    }
+
+    private static void checkCost(List<String> failures, String key, double measured, double tolerance,
+                                  double allowance) {
+        String accepted = knownFailures.getProperty(key);
+        if (accepted == null) {
+            failures.add(key + ": no accepted value, measured " + String.format(Locale.ROOT, "%.2f", measured));
+            return;
+        }
+        double limit = Double.parseDouble(accepted) * tolerance + allowance;
+        if (measured > limit) {
+            failures.add(key + ": measured " + String.format(Locale.ROOT, "%.2f", measured)
+                    + " is above the limit " + String.format(Locale.ROOT, "%.2f", limit));
+        }
+    }
+
+    private static double limit(String knownFailureKey) {
+        String knownRatio = knownFailures.getProperty(knownFailureKey);
+        if (knownRatio != null) {
+            return Double.parseDouble(knownRatio) * KNOWN_FAILURE_TOLERANCE;
+        }
+        return FPP * FPP_TOLERANCE;
+    }
+
+    private static Properties loadKnownFailures() {
+        Properties properties = new Properties();
+        try (InputStream input = BloomFilterEvaluationTest.class.getResourceAsStream(
+                "/bloom-evaluation-known-failures.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not read the known failures", e);
+        }
+        // The accepted ratios were measured with these settings and do not hold for others
+        boolean sameSettings = String.valueOf(N).equals(properties.getProperty("n"))
+                && String.valueOf(M).equals(properties.getProperty("m"))
+                && String.valueOf(FPP).equals(properties.getProperty("fpp"))
+                && String.valueOf(SEED).equals(properties.getProperty("seed"))
+                && String.valueOf(HASH_SALT).equals(properties.getProperty("hashSalt"));
+        return sameSettings ? properties : new Properties();
+    }
+
+    private static final class Measurement {
+        private MultiTierBloomFilter<Object> bloomFilter;
+        private long calibrationNanos = Long.MAX_VALUE;
+        private long insertNanos = Long.MAX_VALUE;
+        private long insertBytes = Long.MAX_VALUE;
+        private long probeNanos = Long.MAX_VALUE;
+        private long probeBytes = Long.MAX_VALUE;
+        private int falseNegatives;
+        private int falsePositives;
+        private int probes;
+        private int inserts;
+        private int[] tierFalsePositives;
+
+        private double observedFpp() {
+            return (double) falsePositives / probes;
+        }
+
+        private double insertNsPerOp() {
+            return (double) insertNanos / inserts;
+        }
+
+        private double probeNsPerOp() {
+            return (double) probeNanos / probes;
+        }
+
+        private double calibrationNsPerOp() {
+            return (double) calibrationNanos / CALIBRATION_OPS;
+        }
+
+        private double insertBytesPerOp() {
+            return (double) insertBytes / inserts;
+        }
+
+        private double probeBytesPerOp() {
+            return (double) probeBytes / probes;
+        }
+
+        private double insertTimeRatio() {
+            return insertNsPerOp() / calibrationNsPerOp();
+        }
+
+        private double probeTimeRatio() {
+            return probeNsPerOp() / calibrationNsPerOp();
+        }
+    }
+
+    private static Measurement run(Supplier<MultiTierBloomFilter<Object>> factory, Keys keys) {
+        Measurement measurement = new Measurement();
+        measurement.inserts = keys.inserted.size();
+        measurement.probes = keys.probes.size();
+
+        // Every run uses a new filter and sets the same bits, only the best costs are kept
+        for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+            measurement.calibrationNanos = Math.min(measurement.calibrationNanos, calibrate());
+            MultiTierBloomFilter<Object> bloomFilter = factory.get();
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (Object key : keys.inserted) {
+                bloomFilter.containsOrAdd(key);
+            }
+            measurement.insertNanos = Math.min(measurement.insertNanos, System.nanoTime() - start);
+            measurement.insertBytes = Math.min(measurement.insertBytes, allocatedBytes() - bytes);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            int falsePositives = 0;
+            for (Object key : keys.probes) {
+                falsePositives += bloomFilter.contains(key) ? 1 : 0;
+            }
+            measurement.probeNanos = Math.min(measurement.probeNanos, System.nanoTime() - start);
+            measurement.probeBytes = Math.min(measurement.probeBytes, allocatedBytes() - bytes);
+            measurement.falsePositives = falsePositives;
+            measurement.bloomFilter = bloomFilter;
+        }
+
+        MultiTierBloomFilter<Object> bloomFilter = measurement.bloomFilter;
+
+        for (Object key : keys.inserted) {
+            measurement.falseNegatives += bloomFilter.contains(key) ? 0 : 1;
+        }
+        measurement.tierFalsePositives = new int[bloomFilter.bitMaps.size()];
+        for (Object key : keys.probes) {
+            for (int tier = 0; tier < bloomFilter.bitMaps.size(); tier++) {
+                measurement.tierFalsePositives[tier] += bloomFilter.checkForTier(tier, key) ? 1 : 0;
+            }
+        }
+        return measurement;
+    }
+
+    private static long calibrate() {
+        // Multiplicative hashing and bit setting in a table larger than the caches, like a bloom filter insert
+        long[] words = new long[1 << 20];
+        long state = SEED;
+        long sink = 0;
+        long best = Long.MAX_VALUE;
+        // The first rounds run before the loop is compiled
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_OPS; i++) {
+                state = state * 6364136223846793005L + 1442695040888963407L;
+                int word = (int) (state >>> 44);
+                sink += words[word] & 1;
+                words[word] |= 1L << state;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        calibrationSink = sink;
+        return best;
+    }
+
+    private static String toJson(String name, KeyDistribution distribution, Keys keys,
+                                 MultiTierBloomFilter<Object> bloomFilter, Measurement measurement,
+                                 Double overallLimit) {
+        long distinctInserted = new HashSet<>(keys.inserted).size();
+        String fppLimit = overallLimit == null ? "null" : String.format(Locale.ROOT, "%.6f", overallLimit);
+        long totalBits = 0;
+        long committedBytes = 0;
+        List<String> tiers = new ArrayList<>();
+        for (int tier = 0; tier < bloomFilter.bitMaps.size(); tier++) {
+            BitMap bitMap = bloomFilter.bitMaps.get(tier);
+            int setBits = bloomFilter.setBitsCount.get(tier);
+            totalBits += bitMap.length();
+            committedBytes += bitMap.committedBytes();
+            tiers.add(String.format(Locale.ROOT,
+                    "{\"tier\": %d, \"bits\": %d, \"setBits\": %d, \"fillRatio\": %.6f, \"observedFpp\": %.6f}",
+                    tier, bitMap.length(), setBits, (double) setBits / bitMap.length(),
+                    (double) measurement.tierFalsePositives[tier] / measurement.probes));
+        }
+        return String.format(Locale.ROOT,
+                "    {\"filter\": \"%s\", \"distribution\": \"%s\", \"inserted\": %d, \"distinctInserted\": %d, "
+                        + "\"probes\": %d, \"configuredFpp\": %s, \"observedFpp\": %.6f, \"fppLimit\": %s, "
+                        + "\"falseNegatives\": %d, "
+                        + "\"bitsPerElement\": %.3f, \"committedBytesPerElement\": %.3f, "
+                        + "\"calibrationNsPerOp\": %.2f, "
+                        + "\"insertNsPerOp\": %.1f, \"insertTimeRatio\": %.2f, \"insertBytesPerOp\": %.1f, "
+                        + "\"probeNsPerOp\": %.1f, \"probeTimeRatio\": %.2f, \"probeBytesPerOp\": %.1f, "
+                        + "\"tiers\": [%s]}",
+                name, distribution, keys.inserted.size(), distinctInserted, measurement.probes, FPP,
+                measurement.observedFpp(), fppLimit, measurement.falseNegatives,
+                (double) totalBits / distinctInserted, (double) committedBytes / distinctInserted,
+                measurement.calibrationNsPerOp(),
+                measurement.insertNsPerOp(), measurement.insertTimeRatio(), measurement.insertBytesPerOp(),
+                measurement.probeNsPerOp(), measurement.probeTimeRatio(), measurement.probeBytesPerOp(),
+                String.join(", ", tiers));
+    }
+
+    private static Keys generateKeys(KeyDistribution distribution, Random random) {
+        Keys keys = new Keys();
+        switch (distribution) {
+            case SEQUENTIAL_INTS -> {
+                for (int i = 0; i < N; i++) {
+                    keys.inserted.add(i);
+                }
+                for (int i = 0; i < M; i++) {
+                    keys.probes.add(N + i);
+                }
+            }
+            case RANDOM_LONGS -> fillDisjoint(keys, random::nextLong);
+            case UUID_STRINGS -> fillDisjoint(keys,
+                    () -> new UUID(random.nextLong(), random.nextLong()).toString());
+            case ZIPFIAN -> {
+                // Hot keys repeat on insert, and probes hit never inserted keys with the same skew
+                double[] cumulative = zipfCumulative(N, 1.0);
+                for (int i = 0; i < N; i++) {
+                    keys.inserted.add(zipfRank(cumulative, random));
+                }
+                for (int i = 0; i < M; i++) {
+                    keys.probes.add(N + zipfRank(cumulative, random));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static void fillDisjoint(Keys keys, Supplier<Object> generator) {
+        Set<Object> inserted = new HashSet<>();
+        while (inserted.size() < N) {
+            Object key = generator.get();
+            if (inserted.add(key)) {
+                keys.inserted.add(key);
+            }
+        }
+        Set<Object> probes = new HashSet<>();
+        while (probes.size() < M) {
+            Object key = generator.get();
+            if (!inserted.contains(key) && probes.add(key)) {
+                keys.probes.add(key);
+            }
+        }
+    }
+
+    private static double[] zipfCumulative(int size, double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int zipfRank(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean sunThreadMXBean) {
+            return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return 0;
+    }
+}